@@ -2,20 +2,35 @@ package posindexer;
 
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
 import org.apache.hadoop.fs.Path;
-import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
-
-public class PositionalIndexDriver {
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+
+// Options are Hadoop properties given with -D before the paths, parsed by ToolRunner:
+//   posindexer.skew.threshold=N           postings at which a term is reported as heavy
+//   posindexer.skew.report.limit=N        heavy term names logged per reducer
+//   posindexer.biwords=true               also write a biword index (biwords-r-00000)
+//   posindexer.biwords.min.frequency=N    keep only pairs that occur at least N times
+public class PositionalIndexDriver extends Configured implements Tool {
     public static void main(String[] args) throws Exception {
-        if (args.length < 2) {
-            System.err.println("Usage: PositionalIndex <input path> <output path>");
-            System.exit(-1);
+        System.exit(ToolRunner.run(new Configuration(), new PositionalIndexDriver(), args));
+    }
+
+    @Override
+    public int run(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("Usage: PositionalIndex [-D property=value ...] <input path> <output path>");
+            ToolRunner.printGenericCommandUsage(System.err);
+            return -1;
         }
 
-        Configuration conf = new Configuration();
+        Configuration conf = getConf();
         conf.set("docID", args[0]);
 
         Job job = Job.getInstance(conf, "Positional Index");
@@ -23,12 +38,22 @@ public class PositionalIndexDriver {
         job.setMapperClass(PositionalIndexMapper.class);
         job.setReducerClass(PositionalIndexReducer.class);
 
-        job.setOutputKeyClass(Text.class);
-        job.setOutputValueClass(Text.class);
+        // Secondary sort: partition and group by term, sort by (term, doc, position)
+        job.setMapOutputKeyClass(TermDocPositionKey.class);
+        job.setMapOutputValueClass(NullWritable.class);
+        job.setPartitionerClass(TermPartitioner.class);
+        job.setSortComparatorClass(TermDocPositionKey.SortComparator.class);
+        job.setGroupingComparatorClass(TermDocPositionKey.GroupingComparator.class);
+
+        // Postings are streamed into "term<TAB>doc: pos, pos; ..." lines by the output format
+        job.setOutputKeyClass(TermDocPositionKey.class);
+        job.setOutputValueClass(NullWritable.class);
+        job.setOutputFormatClass(PostingsOutputFormat.class);
+        MultipleOutputs.addNamedOutput(job, PositionalIndexReducer.BIWORDS_OUTPUT, PostingsOutputFormat.class, TermDocPositionKey.class, NullWritable.class);
 
         FileInputFormat.addInputPath(job, new Path(args[0]));
         FileOutputFormat.setOutputPath(job, new Path(args[1]));
 
-        System.exit(job.waitForCompletion(true) ? 0 : 1);
+        return job.waitForCompletion(true) ? 0 : 1;
     }
 }
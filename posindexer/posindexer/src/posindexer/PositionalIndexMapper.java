@@ -8,9 +8,14 @@ import org.apache.hadoop.fs.Path;
 import java.util.HashMap;
 import java.util.Map;
 
-public class PositionalIndexMapper extends Mapper<LongWritable, Text, Text, Text> {
-    private Text term = new Text();
-    private Text positionInfo = new Text();
+public class PositionalIndexMapper extends Mapper<LongWritable, Text, TermDocPositionKey, NullWritable> {
+    private TermDocPositionKey termPosition = new TermDocPositionKey();
+    private boolean emitBiwords;
+
+    @Override
+    protected void setup(Context context) {
+        emitBiwords = context.getConfiguration().getBoolean(PositionalIndexReducer.BIWORDS_ENABLED, false);
+    }
 
     @Override
     public void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
@@ -25,9 +30,15 @@ public class PositionalIndexMapper extends Mapper<LongWritable, Text, Text, Text
         for (int i = 0; i < lines.length; i++) {
             String[] words = lines[i].split("\\s+");  
             for (int j = 0; j < words.length; j++) {
-                term.set(words[j].toLowerCase());  
-                positionInfo.set(docID + ":" + (j + 1));  
-                context.write(term, positionInfo);  
+                termPosition.set(words[j].toLowerCase(), docID, j + 1);
+                context.write(termPosition, NullWritable.get());
+
+                // Biword "previous current" at the position of its first word; terms never
+                // contain whitespace, so the space marks the key as a biword for the reducer
+                if (emitBiwords && j > 0 && !words[j - 1].isEmpty()) {
+                    termPosition.set(words[j - 1].toLowerCase() + " " + words[j].toLowerCase(), docID, j);
+                    context.write(termPosition, NullWritable.get());
+                }
             }
         }
     }
@@ -1,63 +1,109 @@
 package posindexer;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.*;
 import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
 import java.io.IOException;
-import java.util.*;
+import java.util.ArrayList;
+import java.util.List;
 
-public class PositionalIndexReducer extends Reducer<Text, Text, Text, Text> {
-    private Text positions = new Text();
+public class PositionalIndexReducer extends Reducer<TermDocPositionKey, NullWritable, TermDocPositionKey, NullWritable> {
+    public static final String SKEW_THRESHOLD = "posindexer.skew.threshold";
+    public static final String SKEW_REPORT_LIMIT = "posindexer.skew.report.limit";
+    public static final String BIWORDS_ENABLED = "posindexer.biwords";
+    public static final String BIWORDS_MIN_FREQUENCY = "posindexer.biwords.min.frequency";
+    public static final String BIWORDS_OUTPUT = "biwords";
+
+    public enum SkewCounter { TERMS, POSTINGS, HEAVY_TERMS, HEAVY_TERM_POSTINGS }
+
+    public enum BiwordCounter { BIWORDS, BIWORDS_WRITTEN }
+
+    private static final Log LOG = LogFactory.getLog(PositionalIndexReducer.class);
+
+    private long skewThreshold;
+    private int skewReportLimit;
+    private int heavyTermsReported;
+    private long biwordMinFrequency;
+    private MultipleOutputs<TermDocPositionKey, NullWritable> biwordOutput;
+    private final List<String> heldDocs = new ArrayList<String>();
+    private final List<Integer> heldPositions = new ArrayList<Integer>();
+    private final TermDocPositionKey heldKey = new TermDocPositionKey();
 
     @Override
-    public void reduce(Text key, Iterable<Text> values, Context context) throws IOException, InterruptedException {
-       
-        Map<String, List<String>> docPositionsMap = new TreeMap<>(new Comparator<String>() {
-            @Override
-            public int compare(String doc1, String doc2) {
-                
-                int num1 = Integer.parseInt(doc1.replaceAll("\\D", ""));
-                int num2 = Integer.parseInt(doc2.replaceAll("\\D", ""));
-                return Integer.compare(num1, num2);
-            }
-        });
+    protected void setup(Context context) {
+        Configuration conf = context.getConfiguration();
+        skewThreshold = conf.getLong(SKEW_THRESHOLD, 100000);
+        skewReportLimit = conf.getInt(SKEW_REPORT_LIMIT, 20);
+        biwordMinFrequency = conf.getLong(BIWORDS_MIN_FREQUENCY, 1);
+        biwordOutput = new MultipleOutputs<TermDocPositionKey, NullWritable>(context);
+    }
 
-  
-        for (Text val : values) {
-            String docInfo = val.toString(); 
-            String[] docParts = docInfo.split(":");
-            String docID = docParts[0];  
-            String position = docParts[1];  
+    @Override
+    protected void cleanup(Context context) throws IOException, InterruptedException {
+        biwordOutput.close();
+    }
 
-            if (!docPositionsMap.containsKey(docID)) {
-            	docPositionsMap.put(docID, new ArrayList<String>());
-            }
-            docPositionsMap.get(docID).add(position);
+    @Override
+    public void reduce(TermDocPositionKey key, Iterable<NullWritable> values, Context context) throws IOException, InterruptedException {
+        // The sort comparator already ordered this term's keys by doc and position, and Hadoop
+        // updates key in place while values are iterated, so each posting is handed to
+        // PostingsOutputFormat as it arrives and the line is assembled on disk, not in memory.
+        String term = key.getTerm();
+        if (term.indexOf(' ') >= 0) {
+            reduceBiword(term, key, values, context);
+            return;
+        }
+
+        long postings = 0;
+        for (NullWritable ignored : values) {
+            context.write(key, NullWritable.get());
+            postings++;
         }
 
-    
-        StringBuilder positionList = new StringBuilder();
-        for (Map.Entry<String, List<String>> entry : docPositionsMap.entrySet()) {
-            String docID = entry.getKey();
-            List<String> positionsList = entry.getValue();
-
-            
-            Collections.sort(positionsList);
-
-            
-            StringBuilder joinedPositions = new StringBuilder();
-            for (String pos : positionsList) {
-                if (joinedPositions.length() > 0) {
-                    joinedPositions.append(", ");
-                }
-                joinedPositions.append(pos);
+        // Skew report: heavy terms are the ones most likely to overload a single reducer
+        context.getCounter(SkewCounter.TERMS).increment(1);
+        context.getCounter(SkewCounter.POSTINGS).increment(postings);
+        if (postings >= skewThreshold) {
+            context.getCounter(SkewCounter.HEAVY_TERMS).increment(1);
+            context.getCounter(SkewCounter.HEAVY_TERM_POSTINGS).increment(postings);
+            // Names go to the task log rather than one counter each, which would count
+            // against the job-wide counter limit (mapreduce.job.counters.max)
+            if (heavyTermsReported < skewReportLimit) {
+                LOG.info("Heavy term '" + term + "': " + postings + " postings");
+                heavyTermsReported++;
             }
+        }
+    }
 
-            positionList.append(docID).append(": ");
-            positionList.append(joinedPositions.toString()).append("; ");
+    // Biwords ("w1 w2") go to their own output file, skipping rare pairs. A pair is only
+    // known to be frequent enough once its count reaches the minimum, so at most that many
+    // postings are held back; the rest stream straight to the biword output.
+    private void reduceBiword(String biword, TermDocPositionKey key, Iterable<NullWritable> values, Context context) throws IOException, InterruptedException {
+        heldDocs.clear();
+        heldPositions.clear();
+        long postings = 0;
+        for (NullWritable ignored : values) {
+            postings++;
+            if (postings < biwordMinFrequency) {
+                heldDocs.add(key.getDocID());
+                heldPositions.add(key.getPosition());
+                continue;
+            }
+            for (int i = 0; i < heldDocs.size(); i++) {
+                heldKey.set(biword, heldDocs.get(i), heldPositions.get(i));
+                biwordOutput.write(BIWORDS_OUTPUT, heldKey, NullWritable.get());
+            }
+            heldDocs.clear();
+            heldPositions.clear();
+            biwordOutput.write(BIWORDS_OUTPUT, key, NullWritable.get());
         }
 
-        
-        positions.set(positionList.toString().trim());
-        context.write(key, positions);
+        context.getCounter(BiwordCounter.BIWORDS).increment(1);
+        if (postings >= biwordMinFrequency) {
+            context.getCounter(BiwordCounter.BIWORDS_WRITTEN).increment(1);
+        }
     }
 }
@@ -0,0 +1,72 @@
+package posindexer;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+
+// Writes the index lines "term<TAB>doc: pos, pos; doc: pos;" one posting at a time.
+// The reducer passes each sorted (term, doc, position) key straight through, and the
+// writer starts a new line when the term changes and a new document entry when the
+// document changes, so a posting list is never held in memory however long it is.
+public class PostingsOutputFormat extends FileOutputFormat<TermDocPositionKey, NullWritable> {
+
+    @Override
+    public RecordWriter<TermDocPositionKey, NullWritable> getRecordWriter(TaskAttemptContext context) throws IOException, InterruptedException {
+        Configuration conf = context.getConfiguration();
+        Path file = getDefaultWorkFile(context, "");
+        FileSystem fs = file.getFileSystem(conf);
+        return new PostingsRecordWriter(fs.create(file, false));
+    }
+
+    static class PostingsRecordWriter extends RecordWriter<TermDocPositionKey, NullWritable> {
+        private final DataOutputStream out;
+        private String currentTerm;
+        private String currentDoc;
+
+        PostingsRecordWriter(DataOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(TermDocPositionKey key, NullWritable value) throws IOException {
+            String term = key.getTerm();
+            if (!term.equals(currentTerm)) {
+                if (currentTerm != null) {
+                    out.write(";\n".getBytes(StandardCharsets.UTF_8));
+                }
+                out.write(term.getBytes(StandardCharsets.UTF_8));
+                out.write('\t');
+                currentTerm = term;
+                currentDoc = null;
+            }
+
+            String docID = key.getDocID();
+            if (!docID.equals(currentDoc)) {
+                if (currentDoc != null) {
+                    out.write("; ".getBytes(StandardCharsets.UTF_8));
+                }
+                out.write((docID + ": ").getBytes(StandardCharsets.UTF_8));
+                currentDoc = docID;
+            } else {
+                out.write(", ".getBytes(StandardCharsets.UTF_8));
+            }
+            out.write(Integer.toString(key.getPosition()).getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void close(TaskAttemptContext context) throws IOException {
+            if (currentTerm != null) {
+                out.write(";\n".getBytes(StandardCharsets.UTF_8));
+            }
+            out.close();
+        }
+    }
+}
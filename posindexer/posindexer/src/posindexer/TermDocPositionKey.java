@@ -0,0 +1,209 @@
+package posindexer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+
+// Composite map output key (term, docID, position) used for the secondary sort.
+// Keys sort by term, then numerically by document, then by position, so the
+// reducer sees each term's postings already in output order. Partitioning and
+// grouping only look at the term.
+//
+// Strings are serialized like Text (a VInt byte length, then UTF-8), so a token
+// of any length can be shuffled, and terms order by their UTF-8 bytes both here
+// and in the raw comparators.
+public class TermDocPositionKey implements WritableComparable<TermDocPositionKey> {
+    private static final byte[] EMPTY = new byte[0];
+
+    private String term = "";
+    private String docID = "";
+    private byte[] termBytes = EMPTY;
+    private byte[] docBytes = EMPTY;
+    private int docNumber;
+    private int position;
+
+    public void set(String term, String docID, int position) {
+        this.term = term;
+        this.docID = docID;
+        this.termBytes = term.getBytes(StandardCharsets.UTF_8);
+        this.docBytes = docID.getBytes(StandardCharsets.UTF_8);
+        this.docNumber = parseDocNumber(docID);
+        this.position = position;
+    }
+
+    public String getTerm() {
+        return term;
+    }
+
+    public String getDocID() {
+        return docID;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        writeBytes(out, termBytes);
+        writeBytes(out, docBytes);
+        out.writeInt(docNumber);
+        out.writeInt(position);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        termBytes = readBytes(in);
+        docBytes = readBytes(in);
+        term = new String(termBytes, StandardCharsets.UTF_8);
+        docID = new String(docBytes, StandardCharsets.UTF_8);
+        docNumber = in.readInt();
+        position = in.readInt();
+    }
+
+    @Override
+    public int compareTo(TermDocPositionKey other) {
+        int cmp = compareTerms(this, other);
+        if (cmp != 0) {
+            return cmp;
+        }
+        // Documents are ordered by the number in their name (2.txt before 10.txt)
+        cmp = Integer.compare(docNumber, other.docNumber);
+        if (cmp != 0) {
+            return cmp;
+        }
+        cmp = WritableComparator.compareBytes(docBytes, 0, docBytes.length, other.docBytes, 0, other.docBytes.length);
+        if (cmp != 0) {
+            return cmp;
+        }
+        return Integer.compare(position, other.position);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof TermDocPositionKey)) {
+            return false;
+        }
+        return compareTo((TermDocPositionKey) o) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return term.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return term + "\t" + docID + ":" + position;
+    }
+
+    // Term order shared by compareTo and the grouping comparator: unsigned UTF-8 bytes, the
+    // order the raw comparators see. It only differs from String.compareTo between
+    // supplementary characters and U+E000..U+FFFF.
+    static int compareTerms(TermDocPositionKey a, TermDocPositionKey b) {
+        return WritableComparator.compareBytes(a.termBytes, 0, a.termBytes.length, b.termBytes, 0, b.termBytes.length);
+    }
+
+    private static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+        WritableUtils.writeVInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInput in) throws IOException {
+        byte[] bytes = new byte[WritableUtils.readVInt(in)];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static int parseDocNumber(String docID) {
+        String digits = docID.replaceAll("\\D", "");
+        if (digits.isEmpty()) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(digits);
+        } catch (NumberFormatException e) {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    // Full (term, doc, position) order used to sort map output, compared in serialized form:
+    // each string is a VInt length and its UTF-8 bytes, followed by the doc number and position.
+    public static class SortComparator extends WritableComparator {
+        public SortComparator() {
+            super(TermDocPositionKey.class);
+        }
+
+        @Override
+        public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+            try {
+                int cmp = compareString(b1, s1, b2, s2);
+                if (cmp != 0) {
+                    return cmp;
+                }
+                int doc1 = next(b1, s1);
+                int doc2 = next(b2, s2);
+                int number1 = next(b1, doc1);
+                int number2 = next(b2, doc2);
+                // Documents are ordered by the number in their name (2.txt before 10.txt)
+                cmp = Integer.compare(readInt(b1, number1), readInt(b2, number2));
+                if (cmp != 0) {
+                    return cmp;
+                }
+                cmp = compareString(b1, doc1, b2, doc2);
+                if (cmp != 0) {
+                    return cmp;
+                }
+                return Integer.compare(readInt(b1, number1 + 4), readInt(b2, number2 + 4));
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+
+        @Override
+        @SuppressWarnings("rawtypes")
+        public int compare(WritableComparable a, WritableComparable b) {
+            return ((TermDocPositionKey) a).compareTo((TermDocPositionKey) b);
+        }
+    }
+
+    // Groups all keys of one term into a single reduce call, comparing only the serialized term.
+    public static class GroupingComparator extends WritableComparator {
+        public GroupingComparator() {
+            super(TermDocPositionKey.class);
+        }
+
+        @Override
+        public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+            try {
+                return compareString(b1, s1, b2, s2);
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+
+        @Override
+        @SuppressWarnings("rawtypes")
+        public int compare(WritableComparable a, WritableComparable b) {
+            return compareTerms((TermDocPositionKey) a, (TermDocPositionKey) b);
+        }
+    }
+
+    // Compares the UTF-8 contents of two serialized strings, skipping their VInt length prefixes
+    private static int compareString(byte[] b1, int s1, byte[] b2, int s2) throws IOException {
+        int n1 = WritableUtils.decodeVIntSize(b1[s1]);
+        int n2 = WritableUtils.decodeVIntSize(b2[s2]);
+        return WritableComparator.compareBytes(b1, s1 + n1, WritableComparator.readVInt(b1, s1),
+                b2, s2 + n2, WritableComparator.readVInt(b2, s2));
+    }
+
+    // Offset just past the serialized string starting at s
+    private static int next(byte[] b, int s) throws IOException {
+        return s + WritableUtils.decodeVIntSize(b[s]) + WritableComparator.readVInt(b, s);
+    }
+}
@@ -0,0 +1,13 @@
+package posindexer;
+
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.Partitioner;
+
+// Sends every key of a term to the same reducer, whatever its document and position.
+public class TermPartitioner extends Partitioner<TermDocPositionKey, NullWritable> {
+
+    @Override
+    public int getPartition(TermDocPositionKey key, NullWritable value, int numPartitions) {
+        return (key.getTerm().hashCode() & Integer.MAX_VALUE) % numPartitions;
+    }
+}
@@ -0,0 +1,522 @@
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Document store built next to the positional index so results can show context without
+// re-reading the source files. Each document's text is split into blocks of about BLOCK_CHARS
+// characters compressed independently with Deflate. Tokens are numbered exactly the way
+// PositionalIndexMapper numbers them: one record per line, split on "\\s+", positions
+// restarting at 1 on every line. A line table and a token table map those positions to
+// start/end character offsets, and an occurrence table lists every token's line and position
+// by the hash of its lowercased text, so a term's tokens are found without decompressing
+// anything or searching the line table. The store file is memory-mapped in chunks; only
+// the directory is kept on the heap.
+//
+// File layout:
+//   int magic
+//   data region, per doc: line table (firstToken, tokenCount per line),
+//                         token table (start, end per token),
+//                         occurrence table (termHash, line, position per token, sorted by
+//                         hash then token), compressed blocks
+//   directory, per doc: UTF docID, int charLength, int lineCount, int tokenCount,
+//                       long lineTablePos, long tokenTablePos, long occurrenceTablePos, int blockCount,
+//                       then blockCount x (long blockPos, int compressedLength, int charStart)
+//   trailer: int docCount, long directoryPos
+public class DocumentStore implements Closeable {
+
+    private static final int MAGIC = 0x44535433; // "DST3"
+    private static final int BLOCK_CHARS = 1024; // Small enough that inflating a block takes a few microseconds
+    private static final int SNIPPET_TOKENS = 12;
+    private static final int TRAILER_SIZE = 12;
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+"); // Same split as PositionalIndexMapper
+
+    // Files are mapped in chunks of CHUNK_SIZE that overlap by CHUNK_OVERLAP bytes, so any
+    // read shorter than the overlap (a table entry or a compressed block) fits in one chunk
+    private static final long CHUNK_SIZE = 1L << 30;
+    private static final int CHUNK_OVERLAP = 1 << 16;
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer[] chunks;
+    private final Map<String, DocEntry> directory = new HashMap<>();
+
+    private static class DocEntry {
+        int charLength;
+        int lineCount;
+        int tokenCount;
+        long lineTablePos;
+        long tokenTablePos;
+        long occurrenceTablePos;
+        long[] blockPos;
+        int[] blockLength;
+        int[] blockCharStart;
+    }
+
+    private DocumentStore(File storeFile) throws IOException {
+        file = new RandomAccessFile(storeFile, "r");
+        long length = file.length();
+        if (length < 4 + TRAILER_SIZE) {
+            throw new IOException("Not a document store: " + storeFile);
+        }
+        FileChannel channel = file.getChannel();
+        chunks = new MappedByteBuffer[(int) ((length + CHUNK_SIZE - 1) / CHUNK_SIZE)];
+        for (int i = 0; i < chunks.length; i++) {
+            long start = i * CHUNK_SIZE;
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(CHUNK_SIZE + CHUNK_OVERLAP, length - start));
+        }
+
+        if (readInt(0) != MAGIC) {
+            throw new IOException("Not a document store: " + storeFile);
+        }
+        int docCount = readInt(length - TRAILER_SIZE);
+        long directoryPos = readLong(length - 8);
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(storeFile)))) {
+            in.skipNBytes(directoryPos);
+            for (int i = 0; i < docCount; i++) {
+                String docID = in.readUTF();
+                DocEntry entry = new DocEntry();
+                entry.charLength = in.readInt();
+                entry.lineCount = in.readInt();
+                entry.tokenCount = in.readInt();
+                entry.lineTablePos = in.readLong();
+                entry.tokenTablePos = in.readLong();
+                entry.occurrenceTablePos = in.readLong();
+                int blockCount = in.readInt();
+                entry.blockPos = new long[blockCount];
+                entry.blockLength = new int[blockCount];
+                entry.blockCharStart = new int[blockCount];
+                for (int b = 0; b < blockCount; b++) {
+                    entry.blockPos[b] = in.readLong();
+                    entry.blockLength[b] = in.readInt();
+                    entry.blockCharStart[b] = in.readInt();
+                }
+                directory.put(docID, entry);
+            }
+        }
+    }
+
+    public static DocumentStore open(File storeFile) throws IOException {
+        return new DocumentStore(storeFile);
+    }
+
+    // True when the file exists and was written in this version's layout
+    public static boolean isCurrent(File storeFile) throws IOException {
+        if (storeFile.length() < 4 + TRAILER_SIZE) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(storeFile))) {
+            return in.readInt() == MAGIC;
+        }
+    }
+
+    // Build the store from every file in the data set directory; the file name is the docID,
+    // matching the keys written by the MapReduce job. Documents are streamed to the data region
+    // one at a time and the directory is written last, so only one document is held in memory.
+    public static void build(File dataSetDir, File storeFile) throws IOException {
+        File[] files = dataSetDir.listFiles(File::isFile);
+        if (files == null) {
+            throw new FileNotFoundException("Data set directory not found: " + dataSetDir);
+        }
+        Arrays.sort(files, Comparator.comparing(File::getName));
+
+        ByteArrayOutputStream directoryBytes = new ByteArrayOutputStream();
+        DataOutputStream dir = new DataOutputStream(directoryBytes);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(storeFile)))) {
+            out.writeInt(MAGIC);
+            long pos = 4;
+            for (File f : files) {
+                String text = new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
+                List<int[]> lines = tokenizeLines(text);
+
+                long lineTablePos = pos;
+                int firstToken = 0;
+                for (int[] tokens : lines) {
+                    out.writeInt(firstToken);
+                    out.writeInt(tokens.length / 2);
+                    firstToken += tokens.length / 2;
+                }
+                pos += 8L * lines.size();
+
+                long tokenTablePos = pos;
+                for (int[] tokens : lines) {
+                    for (int offset : tokens) {
+                        out.writeInt(offset);
+                    }
+                    pos += 4L * tokens.length;
+                }
+
+                // Sorted by (hash, token): the signed hash in the high half, the token in the low
+                long occurrenceTablePos = pos;
+                long[] occurrences = new long[firstToken];
+                int[] tokenLine = new int[firstToken];
+                int token = 0;
+                for (int line = 0; line < lines.size(); line++) {
+                    int[] tokens = lines.get(line);
+                    for (int i = 0; i < tokens.length; i += 2) {
+                        int hash = termHash(text.substring(tokens[i], tokens[i + 1]));
+                        occurrences[token] = ((long) hash << 32) | token;
+                        tokenLine[token] = line;
+                        token++;
+                    }
+                }
+                Arrays.sort(occurrences);
+                int[] lineFirst = new int[lines.size()];
+                for (int line = 1; line < lines.size(); line++) {
+                    lineFirst[line] = lineFirst[line - 1] + lines.get(line - 1).length / 2;
+                }
+                for (long occurrence : occurrences) {
+                    int t = (int) occurrence;
+                    out.writeInt((int) (occurrence >>> 32));
+                    out.writeInt(tokenLine[t]);
+                    out.writeInt(t - lineFirst[tokenLine[t]] + 1);
+                }
+                pos += 12L * occurrences.length;
+
+                List<long[]> blocks = new ArrayList<>(); // (pos, compressedLength, charStart)
+                int start = 0;
+                while (start < text.length()) {
+                    int end = Math.min(text.length(), start + BLOCK_CHARS);
+                    // Never split a surrogate pair across two blocks
+                    if (end < text.length() && Character.isHighSurrogate(text.charAt(end - 1))) {
+                        end--;
+                    }
+                    byte[] compressed = compress(text.substring(start, end).getBytes(StandardCharsets.UTF_8));
+                    out.write(compressed);
+                    blocks.add(new long[]{pos, compressed.length, start});
+                    pos += compressed.length;
+                    start = end;
+                }
+
+                dir.writeUTF(f.getName());
+                dir.writeInt(text.length());
+                dir.writeInt(lines.size());
+                dir.writeInt(firstToken);
+                dir.writeLong(lineTablePos);
+                dir.writeLong(tokenTablePos);
+                dir.writeLong(occurrenceTablePos);
+                dir.writeInt(blocks.size());
+                for (long[] block : blocks) {
+                    dir.writeLong(block[0]);
+                    dir.writeInt((int) block[1]);
+                    dir.writeInt((int) block[2]);
+                }
+            }
+
+            dir.flush();
+            directoryBytes.writeTo(out);
+            out.writeInt(files.length);
+            out.writeLong(pos);
+        }
+    }
+
+    public boolean contains(String docID) {
+        return directory.containsKey(docID);
+    }
+
+    // Best matching window of the document for the given query terms, with each matched
+    // token wrapped in [brackets]. The mapper restarts positions on every line, so a posting
+    // alone does not say which token it is. A term's tokens are read from the occurrence table
+    // instead and kept where the positional index lists their position within the line; no
+    // line is scanned and only the blocks covering the chosen window are decompressed.
+    public String snippet(String docID, List<String> queryTerms, Map<String, Map<String, List<Integer>>> positionalIndex) {
+        DocEntry entry = directory.get(docID);
+        if (entry == null || entry.lineCount == 0) {
+            return "";
+        }
+
+        // Hits as (token << 32 | hit number), ordered by token, with each hit's query term and
+        // line in hitTerm and hitLine; a token matching several query terms has one hit per term
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(queryTerms));
+        long[] hits = new long[16];
+        int[] hitTerm = new int[16];
+        int[] hitLine = new int[16];
+        int hitCount = 0;
+        for (int t = 0; t < terms.size(); t++) {
+            List<Integer> termPositions = positionalIndex.getOrDefault(terms.get(t), new TreeMap<>()).get(docID);
+            if (termPositions == null) {
+                continue;
+            }
+            BitSet indexed = new BitSet();
+            for (int pos : termPositions) {
+                if (pos >= 1) {
+                    indexed.set(pos);
+                }
+            }
+            int hash = termHash(terms.get(t));
+            for (int i = firstOccurrence(entry, hash); i < entry.tokenCount && occurrenceHash(entry, i) == hash; i++) {
+                int line = occurrenceLine(entry, i);
+                int position = occurrencePosition(entry, i);
+                if (!indexed.get(position)) {
+                    continue;
+                }
+                if (hitCount == hits.length) {
+                    hits = Arrays.copyOf(hits, hitCount * 2);
+                    hitTerm = Arrays.copyOf(hitTerm, hitCount * 2);
+                    hitLine = Arrays.copyOf(hitLine, hitCount * 2);
+                }
+                hits[hitCount] = ((long) (lineFirstToken(entry, line) + position - 1) << 32) | hitCount;
+                hitTerm[hitCount] = t;
+                hitLine[hitCount] = line;
+                hitCount++;
+            }
+        }
+        Arrays.sort(hits, 0, hitCount);
+
+        // Slide a window of SNIPPET_TOKENS tokens, never crossing a line, over the hits,
+        // preferring more distinct terms, then more hits. Windows only move forward, so each
+        // hit enters and leaves the window once.
+        int[] inWindow = new int[terms.size()];
+        int distinct = 0;
+        int end = 0;
+        int bestLine = 0;
+        int bestStart = lineFirstToken(entry, 0);
+        int bestDistinct = 0;
+        int bestCount = 0;
+        for (int i = 0; i < hitCount; i++) {
+            int start = (int) (hits[i] >>> 32);
+            int line = hitLine[(int) hits[i]];
+            int limit = Math.min(start + SNIPPET_TOKENS, lineFirstToken(entry, line) + lineTokenCount(entry, line));
+            while (end < hitCount && (int) (hits[end] >>> 32) < limit) {
+                if (inWindow[hitTerm[(int) hits[end]]]++ == 0) {
+                    distinct++;
+                }
+                end++;
+            }
+            if (distinct > bestDistinct || (distinct == bestDistinct && end - i > bestCount)) {
+                bestLine = line;
+                bestStart = start;
+                bestDistinct = distinct;
+                bestCount = end - i;
+            }
+            if (--inWindow[hitTerm[(int) hits[i]]] == 0) {
+                distinct--;
+            }
+        }
+        // With no hits this is the start of the document
+        return window(entry, bestLine, bestStart, hits, hitTerm, hitCount, terms);
+    }
+
+    // Snippet of up to SNIPPET_TOKENS tokens of one line around the given token, bracketing hits
+    private String window(DocEntry entry, int line, int startToken, long[] hits, int[] hitTerm, int hitCount, List<String> terms) {
+        int lineBase = lineFirstToken(entry, line);
+        int lineLast = lineBase + lineTokenCount(entry, line) - 1;
+
+        // Centre the window on the matches where the line allows it
+        int firstToken = Math.max(lineBase, startToken - SNIPPET_TOKENS / 4);
+        int lastToken = Math.min(lineLast, firstToken + SNIPPET_TOKENS - 1);
+        firstToken = Math.max(lineBase, lastToken - SNIPPET_TOKENS + 1);
+
+        int charStart = tokenOffset(entry, firstToken, 0);
+        int charEnd = tokenOffset(entry, lastToken, 1);
+        String text = readChars(entry, charStart, charEnd);
+
+        StringBuilder snippet = new StringBuilder();
+        if (firstToken > lineBase || line > 0) {
+            snippet.append("...");
+        }
+        int copied = charStart;
+        int h = Arrays.binarySearch(hits, 0, hitCount, (long) firstToken << 32);
+        for (h = h >= 0 ? h : -h - 1; h < hitCount && (int) (hits[h] >>> 32) <= lastToken; h++) {
+            int token = (int) (hits[h] >>> 32);
+            int start = tokenOffset(entry, token, 0);
+            int end = tokenOffset(entry, token, 1);
+            // Hits were found by hash, so confirm the text before highlighting
+            if (start < copied || !text.substring(start - charStart, end - charStart).toLowerCase().equals(terms.get(hitTerm[(int) hits[h]]))) {
+                continue;
+            }
+            snippet.append(text, copied - charStart, start - charStart);
+            snippet.append('[').append(text, start - charStart, end - charStart).append(']');
+            copied = end;
+        }
+        snippet.append(text, copied - charStart, charEnd - charStart);
+        if (lastToken < lineLast || line < entry.lineCount - 1) {
+            snippet.append("...");
+        }
+        return snippet.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private int lineFirstToken(DocEntry entry, int line) {
+        return readInt(entry.lineTablePos + 8L * line);
+    }
+
+    private int lineTokenCount(DocEntry entry, int line) {
+        return readInt(entry.lineTablePos + 8L * line + 4);
+    }
+
+    // Start (which = 0) or end (which = 1) character offset of a token, indexed from 0 across
+    // the whole document
+    private int tokenOffset(DocEntry entry, int token, int which) {
+        return readInt(entry.tokenTablePos + 8L * token + 4L * which);
+    }
+
+    private int occurrenceHash(DocEntry entry, int index) {
+        return readInt(entry.occurrenceTablePos + 12L * index);
+    }
+
+    private int occurrenceLine(DocEntry entry, int index) {
+        return readInt(entry.occurrenceTablePos + 12L * index + 4);
+    }
+
+    private int occurrencePosition(DocEntry entry, int index) {
+        return readInt(entry.occurrenceTablePos + 12L * index + 8);
+    }
+
+    // Index of the first occurrence table entry with the given hash (or where it would be)
+    private int firstOccurrence(DocEntry entry, int hash) {
+        int low = 0;
+        int high = entry.tokenCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (occurrenceHash(entry, mid) < hash) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Hash of a token as the mapper indexes it (lowercased)
+    private static int termHash(String token) {
+        return token.toLowerCase().hashCode();
+    }
+
+    // Decompress only the blocks overlapping [charStart, charEnd)
+    private String readChars(DocEntry entry, int charStart, int charEnd) {
+        if (charStart >= charEnd) {
+            return "";
+        }
+        int firstBlock = blockFor(entry, charStart);
+        int lastBlock = blockFor(entry, charEnd - 1);
+        StringBuilder text = new StringBuilder();
+        for (int b = firstBlock; b <= lastBlock; b++) {
+            byte[] compressed = new byte[entry.blockLength[b]];
+            chunk(entry.blockPos[b]).get(offsetInChunk(entry.blockPos[b]), compressed);
+            text.append(decompress(compressed));
+        }
+        int offset = entry.blockCharStart[firstBlock];
+        return text.substring(charStart - offset, charEnd - offset);
+    }
+
+    // Index of the block containing the given character offset
+    private static int blockFor(DocEntry entry, int charOffset) {
+        int index = Arrays.binarySearch(entry.blockCharStart, charOffset);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    private int readInt(long pos) {
+        return chunk(pos).getInt(offsetInChunk(pos));
+    }
+
+    private long readLong(long pos) {
+        return chunk(pos).getLong(offsetInChunk(pos));
+    }
+
+    private MappedByteBuffer chunk(long pos) {
+        return chunks[(int) (pos / CHUNK_SIZE)];
+    }
+
+    private static int offsetInChunk(long pos) {
+        return (int) (pos % CHUNK_SIZE);
+    }
+
+    // Token (start, end) offset pairs for each line, numbered like PositionalIndexMapper: lines
+    // are the records LineRecordReader produces (split on \n, \r or \r\n), each split on "\\s+"
+    // with String.split semantics (leading empty token kept, trailing empty tokens dropped)
+    private static List<int[]> tokenizeLines(String text) {
+        List<int[]> lines = new ArrayList<>();
+        int lineStart = 0;
+        while (lineStart < text.length()) {
+            int lineEnd = lineStart;
+            while (lineEnd < text.length() && text.charAt(lineEnd) != '\n' && text.charAt(lineEnd) != '\r') {
+                lineEnd++;
+            }
+            lines.add(tokenOffsets(text, lineStart, lineEnd));
+            if (lineEnd < text.length() && text.charAt(lineEnd) == '\r' && lineEnd + 1 < text.length() && text.charAt(lineEnd + 1) == '\n') {
+                lineEnd++;
+            }
+            lineStart = lineEnd + 1;
+        }
+        return lines;
+    }
+
+    private static int[] tokenOffsets(String text, int lineStart, int lineEnd) {
+        List<Integer> offsets = new ArrayList<>();
+        Matcher separator = WHITESPACE.matcher(text).region(lineStart, lineEnd);
+        int start = lineStart;
+        while (separator.find()) {
+            offsets.add(start);
+            offsets.add(separator.start());
+            start = separator.end();
+        }
+        offsets.add(start);
+        offsets.add(lineEnd);
+        // Drop trailing empty tokens, unless the line had no separator at all
+        if (offsets.size() > 2) {
+            while (!offsets.isEmpty() && offsets.get(offsets.size() - 2).equals(offsets.get(offsets.size() - 1))) {
+                offsets.remove(offsets.size() - 1);
+                offsets.remove(offsets.size() - 1);
+            }
+        }
+        return offsets.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static byte[] compress(byte[] bytes) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        deflater.setInput(bytes);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] chunk = new byte[BLOCK_CHARS];
+        while (!deflater.finished()) {
+            out.write(chunk, 0, deflater.deflate(chunk));
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    // Inflate one block straight into a buffer large enough for its text: UTF-8 needs at most
+    // 3 bytes per char, so a block of BLOCK_CHARS chars never exceeds 3 * BLOCK_CHARS bytes
+    private static String decompress(byte[] bytes) {
+        Inflater inflater = new Inflater();
+        inflater.setInput(bytes);
+        byte[] out = new byte[3 * BLOCK_CHARS];
+        int length = 0;
+        try {
+            while (!inflater.finished()) {
+                int n = inflater.inflate(out, length, out.length - length);
+                if (n == 0 && (inflater.needsInput() || length == out.length)) {
+                    throw new IllegalStateException("Truncated block in document store");
+                }
+                length += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt block in document store", e);
+        } finally {
+            inflater.end();
+        }
+        return new String(out, 0, length, StandardCharsets.UTF_8);
+    }
+
+    // Build the store right after the MapReduce job: DocumentStore <data set dir> <store file>
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: DocumentStore <data set dir> <store file>");
+            System.exit(-1);
+        }
+        build(new File(args[0]), new File(args[1]));
+    }
+}
@@ -0,0 +1,294 @@
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Load-test harness for the in-process query engine. Replays a query log (one query per line,
+// reused cyclically) or a synthetic mix of term, phrase and AND / OR / AND NOT queries drawn
+// from the index, then reports throughput, latency percentiles and allocation per query.
+//
+// Closed loop: each worker thread issues its next query as soon as the previous one finishes.
+// Open loop: queries are scheduled at a fixed rate regardless of completions, and latency is
+// measured from the scheduled start so queueing delay is not hidden (no coordinated omission).
+//
+// Usage: LoadTest [--index src/part-r-00000] [--log queries.txt] [--threads 4]
+//                 [--mode closed|open] [--rate 1000] [--queries 10000] [--warmup 1000]
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                System.err.println("Unexpected argument: " + args[i]);
+                System.exit(-1);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+
+        String indexPath = options.getOrDefault("index", "src/part-r-00000");
+        int threads = Integer.parseInt(options.getOrDefault("threads", "4"));
+        String mode = options.getOrDefault("mode", "closed");
+        double rate = Double.parseDouble(options.getOrDefault("rate", "1000"));
+        int totalQueries = Integer.parseInt(options.getOrDefault("queries", "10000"));
+        int warmupQueries = Integer.parseInt(options.getOrDefault("warmup", "1000"));
+        if (!mode.equals("closed") && !mode.equals("open")) {
+            System.err.println("Mode must be 'closed' or 'open'");
+            System.exit(-1);
+        }
+
+        PositionalIndexProcessor.Index index = PositionalIndexProcessor.loadIndex(indexPath);
+        // Built once and shared by every worker, like the interactive loop does
+        TermDictionary dictionary = new TermDictionary(index.tfIdf.keySet());
+        List<String> queries = options.containsKey("log")
+                ? readQueryLog(options.get("log"))
+                : syntheticQueries(index, 1000, new Random(42));
+        if (queries.isEmpty()) {
+            System.err.println("No queries to replay.");
+            System.exit(-1);
+        }
+
+        System.out.printf("Loaded %d terms, %d documents, %d distinct queries%n",
+                index.tfIdf.size(), index.totalDocuments, queries.size());
+
+        // Warm up the JIT with the same workload before measuring
+        run(index, dictionary, queries, "closed", threads, rate, warmupQueries);
+        Result result = run(index, dictionary, queries, mode, threads, rate, totalQueries);
+        result.print(mode, threads, rate);
+    }
+
+    static Result run(PositionalIndexProcessor.Index index, TermDictionary dictionary, List<String> queries, String mode,
+            int threads, double rate, int totalQueries) throws InterruptedException {
+        Result result = new Result();
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+
+        if (mode.equals("closed")) {
+            AtomicLong next = new AtomicLong();
+            for (int t = 0; t < threads; t++) {
+                workers.execute(() -> {
+                    long i;
+                    while ((i = next.getAndIncrement()) < totalQueries) {
+                        long begin = System.nanoTime();
+                        execute(index, dictionary, queries.get((int) (i % queries.size())), begin, result);
+                    }
+                });
+            }
+        } else {
+            // Dispatch at fixed intervals; each query carries its intended start time
+            long intervalNanos = (long) (1_000_000_000L / rate);
+            for (int i = 0; i < totalQueries; i++) {
+                long intended = start + i * intervalNanos;
+                long wait = intended - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                String query = queries.get(i % queries.size());
+                workers.execute(() -> execute(index, dictionary, query, intended, result));
+            }
+        }
+
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.HOURS);
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    private static void execute(PositionalIndexProcessor.Index index, TermDictionary dictionary, String query,
+            long intendedStart, Result result) {
+        long allocatedBefore = allocatedBytes();
+        try {
+            PositionalIndexProcessor.search(query, index, dictionary);
+        } catch (IllegalArgumentException e) {
+            // Query rejected by the engine; timed separately so fast rejections do not pull
+            // the percentiles of answered queries down
+            result.rejectedLatency.record(System.nanoTime() - intendedStart);
+            return;
+        } catch (RuntimeException e) {
+            // Counted and reported rather than ending this worker's query loop
+            result.failures.incrementAndGet();
+            result.firstFailure.compareAndSet(null, query + ": " + e);
+            return;
+        }
+        long now = System.nanoTime();
+        long allocatedAfter = allocatedBytes();
+        result.latency.record(now - intendedStart);
+        if (allocatedBefore >= 0 && allocatedAfter >= 0) {
+            result.allocatedBytes.addAndGet(allocatedAfter - allocatedBefore);
+        }
+    }
+
+    private static final java.lang.management.ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+
+    // Bytes allocated so far by the current thread, or -1 when the JVM cannot report it
+    private static long allocatedBytes() {
+        if (THREAD_BEAN instanceof com.sun.management.ThreadMXBean sunBean && sunBean.isThreadAllocatedMemorySupported()) {
+            return sunBean.getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+    static List<String> readQueryLog(String path) throws IOException {
+        List<String> queries = new ArrayList<>();
+        for (String line : Files.readAllLines(new File(path).toPath(), StandardCharsets.UTF_8)) {
+            if (!line.trim().isEmpty()) {
+                queries.add(line.trim());
+            }
+        }
+        return queries;
+    }
+
+    // Mix of single terms, adjacent-word phrases taken from the positional index, and
+    // AND / OR / AND NOT combinations of two terms
+    static List<String> syntheticQueries(PositionalIndexProcessor.Index index, int count, Random random) {
+        List<String> terms = new ArrayList<>(index.positionalIndex.keySet());
+        List<String> phrases = adjacentPairs(index);
+        String[] operators = {" AND ", " OR ", " AND NOT "};
+
+        List<String> queries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int kind = random.nextInt(4);
+            if (kind == 0 || (kind == 1 && phrases.isEmpty())) {
+                queries.add(terms.get(random.nextInt(terms.size())));
+            } else if (kind == 1) {
+                queries.add(phrases.get(random.nextInt(phrases.size())));
+            } else {
+                String left = terms.get(random.nextInt(terms.size()));
+                String right = terms.get(random.nextInt(terms.size()));
+                queries.add(left + operators[random.nextInt(operators.length)] + right);
+            }
+        }
+        return queries;
+    }
+
+    private static List<String> adjacentPairs(PositionalIndexProcessor.Index index) {
+        // Rebuild each document's token sequence from the positional postings
+        Map<String, Map<Integer, String>> tokensByDoc = new HashMap<>();
+        for (Map.Entry<String, Map<String, List<Integer>>> term : index.positionalIndex.entrySet()) {
+            for (Map.Entry<String, List<Integer>> doc : term.getValue().entrySet()) {
+                for (int pos : doc.getValue()) {
+                    tokensByDoc.computeIfAbsent(doc.getKey(), k -> new HashMap<>()).put(pos, term.getKey());
+                }
+            }
+        }
+
+        Set<String> pairs = new TreeSet<>();
+        for (Map<Integer, String> tokens : tokensByDoc.values()) {
+            for (Map.Entry<Integer, String> token : tokens.entrySet()) {
+                String nextToken = tokens.get(token.getKey() + 1);
+                if (nextToken != null) {
+                    pairs.add(token.getValue() + " " + nextToken);
+                }
+            }
+        }
+        return new ArrayList<>(pairs);
+    }
+
+    // Latency and allocation cover answered queries only; rejected and failed queries are
+    // counted on their own
+    static class Result {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LatencyHistogram rejectedLatency = new LatencyHistogram();
+        final AtomicLong failures = new AtomicLong();
+        final AtomicReference<String> firstFailure = new AtomicReference<>();
+        final AtomicLong allocatedBytes = new AtomicLong();
+        long elapsedNanos;
+
+        void print(String mode, int threads, double rate) {
+            long count = latency.count();
+            double seconds = elapsedNanos / 1e9;
+            System.out.printf("%nMode: %s, threads: %d%s%n", mode, threads,
+                    mode.equals("open") ? String.format(", target rate: %.0f/s", rate) : "");
+            System.out.printf("%-20s%d (%d rejected, %d failed)%n", "Queries", count, rejectedLatency.count(), failures.get());
+            System.out.printf("%-20s%.2f s%n", "Elapsed", seconds);
+            System.out.printf("%-20s%.1f queries/s%n", "Throughput", count / seconds);
+            System.out.printf("%-20s%.1f us%n", "Mean latency", latency.mean() / 1e3);
+            for (double percentile : new double[]{50, 90, 99, 99.9}) {
+                System.out.printf("%-20s%.1f us%n", "p" + percentile, latency.valueAtPercentile(percentile) / 1e3);
+            }
+            System.out.printf("%-20s%.1f us%n", "Max latency", latency.max() / 1e3);
+            System.out.printf("%-20s%.0f bytes%n", "Allocated / query", count == 0 ? 0.0 : (double) allocatedBytes.get() / count);
+            System.out.printf("%-20s%.1f MB/s%n", "Allocation rate", allocatedBytes.get() / 1e6 / seconds);
+            if (rejectedLatency.count() > 0) {
+                System.out.printf("%-20sp50 %.1f us, max %.1f us%n", "Rejected latency",
+                        rejectedLatency.valueAtPercentile(50) / 1e3, rejectedLatency.max() / 1e3);
+            }
+            if (failures.get() > 0) {
+                System.out.printf("%-20s%s%n", "First failure", firstFailure.get());
+            }
+        }
+    }
+
+    // HDR-style log-linear histogram of nanosecond values: each power of two is split into
+    // SUB_BUCKETS linear buckets, so recorded values keep about 1.5% relative precision.
+    static class LatencyHistogram {
+        private static final int SUB_BUCKET_BITS = 7;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long value) {
+            value = Math.max(0, value);
+            counts.incrementAndGet(bucketIndex(value));
+            total.incrementAndGet();
+            sum.addAndGet(value);
+            max.accumulateAndGet(value, Math::max);
+        }
+
+        long count() {
+            return total.get();
+        }
+
+        double mean() {
+            long n = total.get();
+            return n == 0 ? 0 : (double) sum.get() / n;
+        }
+
+        long max() {
+            return max.get();
+        }
+
+        // Upper bound of the bucket holding the given percentile
+        long valueAtPercentile(double percentile) {
+            long n = total.get();
+            if (n == 0) {
+                return 0;
+            }
+            long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+            long seen = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                seen += counts.get(i);
+                if (seen >= target) {
+                    return Math.min(bucketUpperBound(i), max.get());
+                }
+            }
+            return max.get();
+        }
+
+        private static int bucketIndex(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS + 1;
+            int subBucket = (int) (value >>> exponent) - SUB_BUCKETS / 2;
+            return exponent * SUB_BUCKETS / 2 + SUB_BUCKETS / 2 + subBucket;
+        }
+
+        private static long bucketUpperBound(int index) {
+            if (index < SUB_BUCKETS) {
+                return index;
+            }
+            int exponent = (index - SUB_BUCKETS / 2) / (SUB_BUCKETS / 2);
+            int subBucket = (index - SUB_BUCKETS / 2) % (SUB_BUCKETS / 2) + SUB_BUCKETS / 2;
+            return (((long) subBucket + 1) << exponent) - 1;
+        }
+    }
+}
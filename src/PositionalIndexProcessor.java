@@ -5,10 +5,94 @@ import java.util.stream.Collectors;
 
 public class PositionalIndexProcessor {
 
+    // Upper bound on the alternatives a wildcard term (or a phrase of them) expands into
+    private static final int MAX_WILDCARD_EXPANSIONS = 32;
+
     public static void main(String[] args) throws IOException {
         // File path for reading the positional index data
         String filePath = "src/part-r-00000";
+        // Document store used for result snippets, built from the data set if it is missing or
+        // was written in an older layout
+        File storeFile = new File("src/docstore.bin");
+        File dataSetDir = new File("posindexer/posindexer/project_dataSet");
+
+        Index index = loadIndex(filePath);
+        Map<String, Map<String, Integer>> termFrequency = index.termFrequency;
+        Map<String, Map<String, Double>> weightedTF = index.weightedTF;
+        Map<String, Integer> documentFrequency = index.documentFrequency;
+        Map<String, Map<String, Double>> tfIdf = index.tfIdf;
+        Map<String, Map<String, List<Integer>>> positionalIndex = index.positionalIndex;
+        Map<String, Map<String, List<Integer>>> biwordIndex = index.biwordIndex;
+        List<String> sortedDocuments = index.sortedDocuments;
+        int totalDocuments = index.totalDocuments;
+
+        // Displaying various tables and metrics
+        printTFMatrix(termFrequency, sortedDocuments);
+        printWeightedTFMatrix(weightedTF, sortedDocuments);
+        printDFAndIDFTable(documentFrequency, totalDocuments);
+        printTFIDFTable(tfIdf, sortedDocuments);
+        printDocumentLength(tfIdf, sortedDocuments);
+        printNormalizedTFIDFTable(tfIdf, sortedDocuments);
+
+        // Compact term dictionary for prefix, wildcard and fuzzy lookups
+        TermDictionary dictionary = new TermDictionary(tfIdf.keySet());
+
+        if (!DocumentStore.isCurrent(storeFile) && dataSetDir.isDirectory()) {
+            DocumentStore.build(dataSetDir, storeFile);
+        }
+        DocumentStore store = DocumentStore.isCurrent(storeFile) ? DocumentStore.open(storeFile) : null;
+
+        // Handling user search queries interactively
+        Scanner scanner = new Scanner(System.in);
+        while (true) {
+            System.out.println("Enter a search query (or type 'exit' to quit): ");
+            String query = scanner.nextLine();
+            if (query.equalsIgnoreCase("exit")) {
+                System.out.println("Exiting the program.");
+                break;
+            }
+            String rewritten = rewriteQuery(query, dictionary, documentFrequency);
+            if (!rewritten.equals(query)) {
+                System.out.println("Searching for: " + rewritten);
+            }
+            query = rewritten;
+            Map<String, List<String>> expansions = expandWildcards(query, dictionary, documentFrequency);
+            expansions.forEach((wildcard, terms) -> System.out.println(wildcard + " matches: " + String.join(", ", terms)));
+            handleQuery(query, expansions, tfIdf, positionalIndex, biwordIndex, sortedDocuments, totalDocuments, documentFrequency, store);
+        }
+        if (store != null) {
+            store.close();
+        }
+    }
 
+    // Loaded index tables shared by the interactive loop and in-process callers such as LoadTest
+    public static class Index {
+        public final Map<String, Map<String, Integer>> termFrequency;
+        public final Map<String, Map<String, Double>> weightedTF;
+        public final Map<String, Integer> documentFrequency;
+        public final Map<String, Map<String, Double>> tfIdf;
+        public final Map<String, Map<String, List<Integer>>> positionalIndex;
+        public final Map<String, Map<String, List<Integer>>> biwordIndex;
+        public final List<String> sortedDocuments;
+        public final int totalDocuments;
+
+        Index(Map<String, Map<String, Integer>> termFrequency, Map<String, Map<String, Double>> weightedTF,
+                Map<String, Integer> documentFrequency, Map<String, Map<String, Double>> tfIdf,
+                Map<String, Map<String, List<Integer>>> positionalIndex, Map<String, Map<String, List<Integer>>> biwordIndex,
+                List<String> sortedDocuments, int totalDocuments) {
+            this.termFrequency = termFrequency;
+            this.weightedTF = weightedTF;
+            this.documentFrequency = documentFrequency;
+            this.tfIdf = tfIdf;
+            this.positionalIndex = positionalIndex;
+            this.biwordIndex = biwordIndex;
+            this.sortedDocuments = sortedDocuments;
+            this.totalDocuments = totalDocuments;
+        }
+    }
+
+    // Read the MapReduce output and compute TF, weighted TF, DF and TF-IDF tables
+    public static Index loadIndex(String filePath) throws IOException {
         // Maps for storing term frequency, weighted TF, document frequency, and TF-IDF
         Map<String, Map<String, Integer>> termFrequency = new TreeMap<>();
         Map<String, Map<String, Double>> weightedTF = new TreeMap<>();
@@ -86,25 +170,49 @@ public class PositionalIndexProcessor {
             tfIdf.put(term, tfIdfValues);
         }
 
-        // Displaying various tables and metrics
-        printTFMatrix(termFrequency, sortedDocuments);
-        printWeightedTFMatrix(weightedTF, sortedDocuments);
-        printDFAndIDFTable(documentFrequency, totalDocuments);
-        printTFIDFTable(tfIdf, sortedDocuments);
-        printDocumentLength(tfIdf, sortedDocuments);
-        printNormalizedTFIDFTable(tfIdf, sortedDocuments);
+        // Optional biword index written next to the main output by the MapReduce job
+        File biwordFile = new File(new File(filePath).getAbsoluteFile().getParentFile(), "biwords-r-00000");
+        Map<String, Map<String, List<Integer>>> biwordIndex = loadBiwords(biwordFile);
 
-        // Handling user search queries interactively
-        Scanner scanner = new Scanner(System.in);
-        while (true) {
-            System.out.println("Enter a search query (or type 'exit' to quit): ");
-            String query = scanner.nextLine();
-            if (query.equalsIgnoreCase("exit")) {
-                System.out.println("Exiting the program.");
-                break;
+        return new Index(termFrequency, weightedTF, documentFrequency, tfIdf, positionalIndex, biwordIndex, sortedDocuments, totalDocuments);
+    }
+
+    // Read biword postings ("w1 w2<TAB>doc: pos, pos; ..."); empty when the job did not produce them
+    public static Map<String, Map<String, List<Integer>>> loadBiwords(File file) throws IOException {
+        Map<String, Map<String, List<Integer>>> biwords = new TreeMap<>();
+        if (!file.exists()) {
+            return biwords;
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t");
+                String biword = parts[0];
+                for (String posting : parts[1].split(";")) {
+                    if (posting.contains(":")) {
+                        String[] docParts = posting.split(":");
+                        List<Integer> positionList = new ArrayList<>();
+                        for (String pos : docParts[1].split(",")) {
+                            positionList.add(Integer.parseInt(pos.trim()));
+                        }
+                        biwords.computeIfAbsent(biword, k -> new TreeMap<>()).put(docParts[0].trim(), positionList);
+                    }
+                }
             }
-            handleQuery(query, tfIdf, positionalIndex, sortedDocuments, totalDocuments, documentFrequency);
         }
+        return biwords;
+    }
+
+    // Ranked documents for a query without printing anything; used for in-process load testing.
+    // Wildcard and misspelled terms are rewritten against the dictionary first, as in the
+    // interactive loop. Throws IllegalArgumentException for queries the engine rejects.
+    public static List<Map.Entry<String, Double>> search(String query, Index index, TermDictionary dictionary) {
+        query = rewriteQuery(query, dictionary, index.documentFrequency);
+        Map<String, List<String>> expansions = expandWildcards(query, dictionary, index.documentFrequency);
+        if (query.contains(" AND NOT ") || query.contains(" AND ") || query.contains(" OR ")) {
+            return handleLogicalOperators(query, expansions, index.tfIdf, index.positionalIndex, index.biwordIndex, index.sortedDocuments);
+        }
+        return processUserQuery(query, expansions, index.tfIdf, index.positionalIndex, index.biwordIndex, index.sortedDocuments);
     }
 
     // Method to print the Term Frequency (TF) matrix
@@ -224,7 +332,78 @@ public class PositionalIndexProcessor {
         System.out.println();
     }
 
-    public static List<Map.Entry<String, Double>> handleLogicalOperators(String query, Map<String, Map<String, Double>> tfIdf, Map<String, Map<String, List<Integer>>> positions, List<String> documents) {
+    // Replace misspelled terms (ceaser -> caeser) by their closest, most frequent dictionary match.
+    // Wildcard terms are left as typed; expandWildcards resolves them.
+    public static String rewriteQuery(String query, TermDictionary dictionary, Map<String, Integer> documentFrequency) {
+        String[] queryTerms = query.split(" ");
+        Comparator<String> byFrequency = Comparator.comparing((String c) -> documentFrequency.getOrDefault(c, 0)).reversed();
+        for (int i = 0; i < queryTerms.length; i++) {
+            String term = queryTerms[i];
+            if (isQueryKeyword(term) || term.contains("*") || dictionary.contains(term)) {
+                continue;
+            }
+            List<String> candidates = dictionary.closestMatches(term, term.length() <= 4 ? 1 : 2);
+            if (!candidates.isEmpty()) {
+                queryTerms[i] = Collections.min(candidates, byFrequency);
+            }
+        }
+        return String.join(" ", queryTerms);
+    }
+
+    // Expansions of each wildcard term in the query (caes* -> caeser, caesar), most frequent first.
+    // The engine searches a wildcard as the union of its expansions; wildcards matching nothing
+    // are left out and behave like any unknown term.
+    public static Map<String, List<String>> expandWildcards(String query, TermDictionary dictionary, Map<String, Integer> documentFrequency) {
+        Comparator<String> byFrequency = Comparator.comparing((String c) -> documentFrequency.getOrDefault(c, 0)).reversed();
+        Map<String, List<String>> expansions = new LinkedHashMap<>();
+        for (String term : query.split(" ")) {
+            if (!term.contains("*") || expansions.containsKey(term)) {
+                continue;
+            }
+            List<String> matches = new ArrayList<>(dictionary.expandWildcard(term));
+            if (!matches.isEmpty()) {
+                matches.sort(byFrequency);
+                expansions.put(term, new ArrayList<>(matches.subList(0, Math.min(MAX_WILDCARD_EXPANSIONS, matches.size()))));
+            }
+        }
+        return expansions;
+    }
+
+    private static boolean isQueryKeyword(String term) {
+        return term.isEmpty() || term.equals("AND") || term.equals("OR") || term.equals("NOT");
+    }
+
+    // The dictionary terms a query term stands for: its expansions for a wildcard, else itself
+    private static List<String> alternatives(String term, Map<String, List<String>> expansions) {
+        return expansions.getOrDefault(term, Collections.singletonList(term));
+    }
+
+    // Concrete phrases for a phrase containing wildcards ("caes* mercy" -> "caeser mercy",
+    // "caesar mercy"), capped at MAX_WILDCARD_EXPANSIONS so several wildcards cannot explode
+    private static List<String> phraseVariants(String phrase, Map<String, List<String>> expansions) {
+        List<String> variants = new ArrayList<>();
+        variants.add("");
+        for (String term : phrase.split(" ")) {
+            List<String> next = new ArrayList<>();
+            for (String prefix : variants) {
+                for (String alternative : alternatives(term, expansions)) {
+                    if (next.size() < MAX_WILDCARD_EXPANSIONS) {
+                        next.add(prefix.isEmpty() ? alternative : prefix + " " + alternative);
+                    }
+                }
+            }
+            variants = next;
+        }
+        return variants;
+    }
+
+    // True when the term (or, for a wildcard, any of its expansions) occurs in the document
+    private static boolean termInDocument(String term, Map<String, List<String>> expansions, String docID, Map<String, Map<String, Double>> tfIdf) {
+        return alternatives(term, expansions).stream()
+                .anyMatch(t -> tfIdf.getOrDefault(t, new TreeMap<>()).getOrDefault(docID, 0.0) > 0);
+    }
+
+    public static List<Map.Entry<String, Double>> handleLogicalOperators(String query, Map<String, List<String>> expansions, Map<String, Map<String, Double>> tfIdf, Map<String, Map<String, List<Integer>>> positions, Map<String, Map<String, List<Integer>>> biwords, List<String> documents) {
         // Extract the operator and phrases from the query
         String[] parts;
         String operator = null;
@@ -250,9 +429,9 @@ public class PositionalIndexProcessor {
         String phrase2 = parts[1].trim();
 
         // Get documents for each phrase
-        List<Map.Entry<String, Double>> docs1 = processUserQuery(phrase1, tfIdf, positions, documents);
+        List<Map.Entry<String, Double>> docs1 = processUserQuery(phrase1, expansions, tfIdf, positions, biwords, documents);
 
-        List<Map.Entry<String, Double>> docs2 = processUserQuery(phrase2, tfIdf, positions, documents);
+        List<Map.Entry<String, Double>> docs2 = processUserQuery(phrase2, expansions, tfIdf, positions, biwords, documents);
 
         // Handle the logical operator
         Set<String> resultDocs = new HashSet<>();
@@ -301,10 +480,11 @@ public class PositionalIndexProcessor {
 
     }
 
-    public static void handleQuery(String query, Map<String, Map<String, Double>> tfIdf, Map<String, Map<String, List<Integer>>> positions, List<String> documents, int totaldocs, Map<String, Integer> documentFrequency) {
+    public static void handleQuery(String query, Map<String, List<String>> expansions, Map<String, Map<String, Double>> tfIdf, Map<String, Map<String, List<Integer>>> positions, Map<String, Map<String, List<Integer>>> biwords, List<String> documents, int totaldocs, Map<String, Integer> documentFrequency, DocumentStore store) {
 
         String[] queryTerms = query.split(" ");
         boolean validQuery = Arrays.stream(queryTerms)
+                .flatMap(term -> alternatives(term, expansions).stream())
                 .anyMatch(term -> tfIdf.containsKey(term)); // Check if any query term exists in tfIdf
 
         if (!validQuery) {
@@ -313,12 +493,12 @@ public class PositionalIndexProcessor {
         }
 
         if (query.contains(" AND NOT ") || query.contains(" AND ") || query.contains(" OR ")) {
-            List<Map.Entry<String, Double>> docs = handleLogicalOperators(query, tfIdf, positions, documents);
+            List<Map.Entry<String, Double>> docs = handleLogicalOperators(query, expansions, tfIdf, positions, biwords, documents);
             // Check if the result is empty
             if (docs.isEmpty()) {
                 System.out.println("No relevant documents found.");
             } else {
-                computeTFIDF(docs, query, tfIdf, documents, totaldocs, documentFrequency);
+                computeTFIDF(docs, query, expansions, tfIdf, positions, biwords, documents, totaldocs, documentFrequency);
                 System.out.printf("Relevant Docs are: ");
                 for (int i = 0; i < docs.size(); i++) {
                     String docID = docs.get(i).getKey();
@@ -329,15 +509,16 @@ public class PositionalIndexProcessor {
                     }
                 }
                 System.out.println();
+                printSnippets(docs, query, expansions, positions, store);
             }
         } else {
-            List<Map.Entry<String, Double>> docs = processUserQuery(query, tfIdf, positions, documents);
+            List<Map.Entry<String, Double>> docs = processUserQuery(query, expansions, tfIdf, positions, biwords, documents);
             // Filter documents to ensure they contain all query terms
             docs = docs.stream()
                     .filter(entry -> {
                         String docID = entry.getKey();
                         return Arrays.stream(queryTerms)
-                                .allMatch(term -> tfIdf.getOrDefault(term, new TreeMap<>()).getOrDefault(docID, 0.0) > 0);
+                                .allMatch(term -> termInDocument(term, expansions, docID, tfIdf));
                     })
                     .collect(Collectors.toList());
 
@@ -345,7 +526,7 @@ public class PositionalIndexProcessor {
             if (docs.isEmpty()) {
                 System.out.println("No relevant documents found.");
             } else {
-                computeTFIDF(docs, query, tfIdf, documents, totaldocs, documentFrequency);
+                computeTFIDF(docs, query, expansions, tfIdf, positions, biwords, documents, totaldocs, documentFrequency);
                 // Print the documents with their similarity values
                 for (Map.Entry<String, Double> entry : docs) {
                     String docID = entry.getKey();
@@ -362,13 +543,50 @@ public class PositionalIndexProcessor {
                     }
                 }
                 System.out.println();
+                printSnippets(docs, query, expansions, positions, store);
 
             }
         }
     }
 
-    private static List<Map.Entry<String, Double>> processUserQuery(String query, Map<String, Map<String, Double>> tfIdf,
-            Map<String, Map<String, List<Integer>>> positions, List<String> documents) {
+    // Print a highlighted context snippet for each result document from the document store
+    private static void printSnippets(List<Map.Entry<String, Double>> docs, String query, Map<String, List<String>> expansions,
+            Map<String, Map<String, List<Integer>>> positions, DocumentStore store) {
+        if (store == null) {
+            return;
+        }
+        // Only the positive side of "X AND NOT Y" appears in the results, so only X is highlighted
+        String positive = query.contains(" AND NOT ") ? query.substring(0, query.indexOf(" AND NOT ")) : query;
+        List<String> terms = Arrays.stream(positive.split("\\s+"))
+                .filter(term -> !isQueryKeyword(term))
+                .flatMap(term -> alternatives(term, expansions).stream())
+                .collect(Collectors.toList());
+        for (Map.Entry<String, Double> entry : docs) {
+            String docID = entry.getKey();
+            if (store.contains(docID)) {
+                System.out.println(docID + ": " + store.snippet(docID, terms, positions));
+            }
+        }
+    }
+
+    private static List<Map.Entry<String, Double>> processUserQuery(String query, Map<String, List<String>> expansions, Map<String, Map<String, Double>> tfIdf,
+            Map<String, Map<String, List<Integer>>> positions, Map<String, Map<String, List<Integer>>> biwords, List<String> documents) {
+        if (Arrays.stream(query.split(" ")).anyMatch(expansions::containsKey)) {
+            // Wildcards: union of the concrete phrases, keeping each document's best score
+            Map<String, Double> unionScores = new TreeMap<>();
+            for (String variant : phraseVariants(query, expansions)) {
+                if (Arrays.stream(variant.split(" ")).noneMatch(tfIdf::containsKey)) {
+                    continue;
+                }
+                for (Map.Entry<String, Double> entry : processUserQuery(variant, Collections.emptyMap(), tfIdf, positions, biwords, documents)) {
+                    unionScores.merge(entry.getKey(), entry.getValue(), Math::max);
+                }
+            }
+            List<Map.Entry<String, Double>> rankedDocuments = new ArrayList<>(unionScores.entrySet());
+            rankedDocuments.sort((e1, e2) -> Double.compare(e2.getValue(), e1.getValue()));
+            return rankedDocuments;
+        }
+
         String[] queryTerms = query.split(" ");
         Map<String, Double> documentScores = new TreeMap<>();
 
@@ -379,37 +597,62 @@ public class PositionalIndexProcessor {
             throw new IllegalArgumentException("Invalid query: no terms in the query exist in the dataset.");
         }
 
+        // Biword pre-filter: a document can only contain the phrase if it contains every
+        // adjacent word pair, so intersect the postings of the pairs the biword index covers.
+        // Pairs missing from the index (e.g. below the job's frequency threshold) are skipped.
+        Set<String> candidateDocs = null;
+        boolean allPairsIndexed = queryTerms.length > 1;
+        for (int i = 0; i + 1 < queryTerms.length; i++) {
+            Map<String, List<Integer>> pairPostings = biwords.get(queryTerms[i] + " " + queryTerms[i + 1]);
+            if (pairPostings == null) {
+                allPairsIndexed = false;
+                continue;
+            }
+            if (candidateDocs == null) {
+                candidateDocs = new HashSet<>(pairPostings.keySet());
+            } else {
+                candidateDocs.retainAll(pairPostings.keySet());
+            }
+        }
+        // A two-word phrase found in the biword index needs no positional verification
+        boolean biwordMatch = queryTerms.length == 2 && allPairsIndexed;
+
         for (String doc : documents) {
+            if (candidateDocs != null && !candidateDocs.contains(doc)) {
+                continue;
+            }
             boolean matchesOrder = true;
             List<Integer> lastTermPositions = null;
 
-            for (String term : queryTerms) {
-                List<Integer> termPositions = positions.getOrDefault(term, new TreeMap<>()).get(doc);
-                if (termPositions == null || termPositions.isEmpty()) {
-                    matchesOrder = false;
-                    break;
-                }
+            if (!biwordMatch) {
+                for (String term : queryTerms) {
+                    List<Integer> termPositions = positions.getOrDefault(term, new TreeMap<>()).get(doc);
+                    if (termPositions == null || termPositions.isEmpty()) {
+                        matchesOrder = false;
+                        break;
+                    }
 
-                boolean found = false;
-                if (lastTermPositions != null) {
+                    boolean found = false;
+                    if (lastTermPositions != null) {
 
-                    for (int pos : termPositions) {
-                        boolean validPosition = lastTermPositions.stream().anyMatch(lastPos -> pos == lastPos + 1);
-                        if (validPosition) {
-                            found = true;
-                            break;
+                        for (int pos : termPositions) {
+                            boolean validPosition = lastTermPositions.stream().anyMatch(lastPos -> pos == lastPos + 1);
+                            if (validPosition) {
+                                found = true;
+                                break;
+                            }
                         }
+                    } else {
+                        found = true;
                     }
-                } else {
-                    found = true;
-                }
 
-                if (!found) {
-                    matchesOrder = false;
-                    break;
-                }
+                    if (!found) {
+                        matchesOrder = false;
+                        break;
+                    }
 
-                lastTermPositions = termPositions;
+                    lastTermPositions = termPositions;
+                }
             }
 
             if (matchesOrder) {
@@ -505,7 +748,10 @@ public class PositionalIndexProcessor {
     }
 
     public static void computeTFIDF(List<Map.Entry<String, Double>> docs, String query,
+            Map<String, List<String>> expansions,
             Map<String, Map<String, Double>> tfIdf,
+            Map<String, Map<String, List<Integer>>> positions,
+            Map<String, Map<String, List<Integer>>> biwords,
             List<String> documents,
             int totalDocs,
             Map<String, Integer> documentFrequency) {
@@ -519,6 +765,44 @@ public class PositionalIndexProcessor {
                 .filter(term -> !term.isEmpty())
                 .collect(Collectors.toList());
 
+        if (validTerms.stream().noneMatch(expansions::containsKey)) {
+            printSimilarities(scoreTerms(docs, validTerms, norm, totalDocs, documentFrequency));
+            return;
+        }
+
+        // A wildcard query is ranked by the best of its concrete variants, so the breakdown is
+        // shown for each variant over the documents it matched, and each document keeps its maximum.
+        // Logical queries are ranked per side, so there every result document is scored.
+        boolean logical = query.contains(" AND ") || query.contains(" OR ");
+        Map<String, Double> bestSimilarity = new HashMap<>();
+        for (String variant : phraseVariants(String.join(" ", validTerms), expansions)) {
+            if (Arrays.stream(variant.split(" ")).noneMatch(tfIdf::containsKey)) {
+                continue;
+            }
+            List<Map.Entry<String, Double>> variantDocs = docs;
+            if (!logical) {
+                Set<String> matched = processUserQuery(variant, Collections.emptyMap(), tfIdf, positions, biwords, documents).stream()
+                        .map(Map.Entry::getKey)
+                        .collect(Collectors.toSet());
+                variantDocs = docs.stream()
+                        .filter(entry -> matched.contains(entry.getKey()))
+                        .collect(Collectors.toList());
+            }
+            if (variantDocs.isEmpty()) {
+                continue;
+            }
+            System.out.println("\nVariant: " + variant);
+            scoreTerms(variantDocs, Arrays.asList(variant.split(" ")), norm, totalDocs, documentFrequency)
+                    .forEach((doc, similarity) -> bestSimilarity.merge(doc, similarity, Math::max));
+        }
+        printSimilarities(bestSimilarity);
+    }
+
+    // Print the query term weights and each term's contribution per document; returns the
+    // resulting similarity of every document
+    private static Map<String, Double> scoreTerms(List<Map.Entry<String, Double>> docs, List<String> validTerms,
+            Map<String, Map<String, Double>> norm, int totalDocs, Map<String, Integer> documentFrequency) {
+
         List<Map<String, Double>> storedValues = new ArrayList<>();
 
         System.out.printf("\n%-15s%-15s%-10s%-10s%-10s%-15s%n",
@@ -615,7 +899,10 @@ public class PositionalIndexProcessor {
 
             docSimilarityMap.put(doc, docSimilarityMap.getOrDefault(doc, 0.0) + normalizedValue);
         }
+        return docSimilarityMap;
+    }
 
+    private static void printSimilarities(Map<String, Double> docSimilarityMap) {
         if (!docSimilarityMap.isEmpty()) {
             System.out.printf("\n%-15s%-15s%n", "Document", "Similarity");
             for (Map.Entry<String, Double> entry : docSimilarityMap.entrySet()) {
@@ -0,0 +1,335 @@
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.regex.Pattern;
+
+// Compact sorted vocabulary used for prefix, wildcard and fuzzy term lookups.
+// Terms are front-coded in blocks of BLOCK_SIZE (first term stored in full, the rest
+// as shared-prefix length + suffix), and a bigram index maps each k-gram to the ids
+// of the terms containing it, so lookups never need to scan the whole vocabulary.
+public class TermDictionary {
+
+    private static final int BLOCK_SIZE = 16;
+    private static final int GRAM_SIZE = 2;
+    private static final char BOUNDARY = '$';
+
+    private final byte[] data;           // front-coded term bytes for all blocks
+    private final int[] blockOffsets;    // start of each block in data
+    private final String[] blockHeads;   // first term of each block, for binary search
+    private final int size;
+    private final Map<String, int[]> gramIndex = new HashMap<>(); // k-gram -> sorted term ids
+
+    public TermDictionary(Collection<String> terms) {
+        List<String> sorted = new ArrayList<>(new TreeSet<>(terms));
+        size = sorted.size();
+
+        int blockCount = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        blockOffsets = new int[blockCount];
+        blockHeads = new String[blockCount];
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] previous = new byte[0];
+        for (int id = 0; id < size; id++) {
+            byte[] current = sorted.get(id).getBytes(StandardCharsets.UTF_8);
+            if (id % BLOCK_SIZE == 0) {
+                // Block head: full term, no prefix sharing across blocks
+                blockOffsets[id / BLOCK_SIZE] = out.size();
+                blockHeads[id / BLOCK_SIZE] = sorted.get(id);
+                writeVInt(out, current.length);
+                out.write(current, 0, current.length);
+            } else {
+                int shared = 0;
+                int max = Math.min(previous.length, current.length);
+                while (shared < max && previous[shared] == current[shared]) {
+                    shared++;
+                }
+                writeVInt(out, shared);
+                writeVInt(out, current.length - shared);
+                out.write(current, shared, current.length - shared);
+            }
+            previous = current;
+        }
+        data = out.toByteArray();
+
+        // Build the k-gram index; ids are added in ascending order so each list stays sorted
+        Map<String, List<Integer>> grams = new HashMap<>();
+        for (int id = 0; id < size; id++) {
+            for (String gram : kGrams(sorted.get(id))) {
+                grams.computeIfAbsent(gram, k -> new ArrayList<>()).add(id);
+            }
+        }
+        for (Map.Entry<String, List<Integer>> entry : grams.entrySet()) {
+            gramIndex.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(String term) {
+        if (size == 0) {
+            return false;
+        }
+        for (String candidate : decodeBlock(findBlock(term))) {
+            if (candidate.equals(term)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // All terms starting with the given prefix, in sorted order
+    public List<String> termsWithPrefix(String prefix) {
+        List<String> result = new ArrayList<>();
+        if (size == 0) {
+            return result;
+        }
+        for (int block = findBlock(prefix); block < blockHeads.length; block++) {
+            for (String term : decodeBlock(block)) {
+                if (term.startsWith(prefix)) {
+                    result.add(term);
+                } else if (term.compareTo(prefix) > 0) {
+                    return result; // Past the prefix range
+                }
+            }
+        }
+        return result;
+    }
+
+    // Expands a pattern using '*' as wildcard (e.g. "caes*", "*ser", "c*r")
+    public List<String> expandWildcard(String pattern) {
+        int star = pattern.indexOf('*');
+        if (star < 0) {
+            return contains(pattern) ? List.of(pattern) : List.of();
+        }
+
+        List<String> candidates;
+        if (star > 0) {
+            // Literal prefix narrows the search to one range of the sorted dictionary
+            candidates = termsWithPrefix(pattern.substring(0, star));
+        } else {
+            // Leading wildcard: intersect the k-gram lists of the literal fragments
+            candidates = gramCandidates(pattern);
+        }
+
+        Pattern regex = toRegex(pattern);
+        List<String> result = new ArrayList<>();
+        for (String term : candidates) {
+            if (regex.matcher(term).matches()) {
+                result.add(term);
+            }
+        }
+        return result;
+    }
+
+    // Terms within maxEdits Levenshtein edits of the given term, closest first. Terms too short
+    // for the k-gram filter (see editDistances) have no matches.
+    public List<String> fuzzyMatches(String term, int maxEdits) {
+        Map<String, Integer> distances = editDistances(term, maxEdits);
+        List<String> result = new ArrayList<>(distances.keySet());
+        result.sort(Comparator.comparing((String t) -> distances.get(t)).thenComparing(Comparator.naturalOrder()));
+        return result;
+    }
+
+    // Only the terms at the smallest edit distance (within maxEdits) from the given term
+    public List<String> closestMatches(String term, int maxEdits) {
+        Map<String, Integer> distances = editDistances(term, maxEdits);
+        int best = distances.values().stream().min(Integer::compare).orElse(0);
+        List<String> result = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : distances.entrySet()) {
+            if (entry.getValue() == best) {
+                result.add(entry.getKey());
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private Map<String, Integer> editDistances(String term, int maxEdits) {
+        Set<String> queryGrams = kGrams(term);
+        // Every edit destroys at most GRAM_SIZE of the query's distinct k-grams
+        int minShared = queryGrams.size() - GRAM_SIZE * maxEdits;
+
+        Map<String, Integer> distances = new HashMap<>();
+        if (minShared <= 0) {
+            // Too few distinct k-grams ("a", "aaaaa") for the filter to prune anything; such
+            // terms are not corrected rather than compared against the whole vocabulary
+            return distances;
+        }
+
+        Map<Integer, Integer> sharedCounts = new HashMap<>();
+        for (String gram : queryGrams) {
+            for (int id : gramIndex.getOrDefault(gram, new int[0])) {
+                sharedCounts.merge(id, 1, Integer::sum);
+            }
+        }
+
+        for (Map.Entry<Integer, Integer> entry : sharedCounts.entrySet()) {
+            if (entry.getValue() < minShared) {
+                continue;
+            }
+            String candidate = term(entry.getKey());
+            if (Math.abs(candidate.length() - term.length()) > maxEdits) {
+                continue;
+            }
+            int distance = editDistance(term, candidate, maxEdits);
+            if (distance <= maxEdits) {
+                distances.put(candidate, distance);
+            }
+        }
+        return distances;
+    }
+
+    // Term with the given id (its rank in sorted order)
+    public String term(int id) {
+        return decodeBlock(id / BLOCK_SIZE)[id % BLOCK_SIZE];
+    }
+
+    private List<String> gramCandidates(String pattern) {
+        String bounded = BOUNDARY + pattern + BOUNDARY;
+        int[] candidates = null;
+        for (String fragment : bounded.split("\\*")) {
+            for (int i = 0; i + GRAM_SIZE <= fragment.length(); i++) {
+                int[] ids = gramIndex.getOrDefault(fragment.substring(i, i + GRAM_SIZE), new int[0]);
+                candidates = (candidates == null) ? ids : intersect(candidates, ids);
+            }
+        }
+
+        List<String> result = new ArrayList<>();
+        if (candidates == null) {
+            // Pattern has no usable k-gram (e.g. "*" or "*a*"), so every term qualifies
+            for (int id = 0; id < size; id++) {
+                result.add(term(id));
+            }
+        } else {
+            for (int id : candidates) {
+                result.add(term(id));
+            }
+        }
+        return result;
+    }
+
+    // Index of the last block whose head term is <= key
+    private int findBlock(String key) {
+        int low = 0;
+        int high = blockHeads.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (blockHeads[mid].compareTo(key) <= 0) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private String[] decodeBlock(int block) {
+        int count = Math.min(BLOCK_SIZE, size - block * BLOCK_SIZE);
+        String[] terms = new String[count];
+        int[] pos = {blockOffsets[block]};
+        byte[] previous = new byte[0];
+        for (int i = 0; i < count; i++) {
+            byte[] current;
+            if (i == 0) {
+                int length = readVInt(pos);
+                current = Arrays.copyOfRange(data, pos[0], pos[0] + length);
+                pos[0] += length;
+            } else {
+                int shared = readVInt(pos);
+                int suffix = readVInt(pos);
+                current = new byte[shared + suffix];
+                System.arraycopy(previous, 0, current, 0, shared);
+                System.arraycopy(data, pos[0], current, shared, suffix);
+                pos[0] += suffix;
+            }
+            terms[i] = new String(current, StandardCharsets.UTF_8);
+            previous = current;
+        }
+        return terms;
+    }
+
+    private int readVInt(int[] pos) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[pos[0]++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static void writeVInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static Set<String> kGrams(String term) {
+        String bounded = BOUNDARY + term + BOUNDARY;
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM_SIZE <= bounded.length(); i++) {
+            grams.add(bounded.substring(i, i + GRAM_SIZE));
+        }
+        return grams;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                result[n++] = a[i];
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    private static Pattern toRegex(String pattern) {
+        StringBuilder regex = new StringBuilder();
+        for (String part : pattern.split("\\*", -1)) {
+            if (regex.length() > 0) {
+                regex.append(".*");
+            }
+            regex.append(Pattern.quote(part));
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    // Levenshtein distance, giving up early once every cell in a row exceeds maxEdits
+    private static int editDistance(String a, String b, int maxEdits) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = (a.charAt(i - 1) == b.charAt(j - 1)) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > maxEdits) {
+                return maxEdits + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+}